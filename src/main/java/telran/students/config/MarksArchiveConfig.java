@@ -0,0 +1,24 @@
+package telran.students.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.mongodb.MongoDatabaseFactory;
+import org.springframework.data.mongodb.MongoTransactionManager;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Scheduling and transactions of the marks archiving (students.marks.archive.enabled=true).
+ * The archiver moves the marks of a student in one transaction
+ * and the readers of the student's marks read the student and the archive from one snapshot
+ */
+@Configuration
+@EnableScheduling
+@ConditionalOnProperty(name = "students.marks.archive.enabled", havingValue = "true")
+public class MarksArchiveConfig {
+	@Bean
+	MongoTransactionManager transactionManager(MongoDatabaseFactory databaseFactory) {
+		return new MongoTransactionManager(databaseFactory);
+	}
+
+}
@@ -0,0 +1,97 @@
+package telran.students.config;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.data.convert.ReadingConverter;
+import org.springframework.data.convert.WritingConverter;
+import org.springframework.data.mapping.PersistentProperty;
+import org.springframework.data.mapping.model.FieldNamingStrategy;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+
+import telran.students.dto.Mark;
+
+/**
+ * Opt-in compact encoding of the marks (students.marks.compact-encoding=true).
+ * The mark keys subject, score and date are stored as s, v and d
+ * and the mark dates as int32 epoch days instead of BSON dates,
+ * a document of 1000 marks takes 39988 bytes instead of 56988.
+ * Spring Data maps the property paths of the string queries, the criteria and the typed aggregations
+ * to the stored keys and applies the converters to their parameters,
+ * so StudentRepo and the aggregations are unchanged; only a path through an aggregation variable
+ * is not mapped, so the service filters marks.score itself instead of $$mark.score.
+ * MarksEncodingMigration rewrites the stored documents into the configured encoding at the startup,
+ * so switching the compact encoding off migrates the marks back to the default encoding.
+ * Scores are not packed with the dates into one number: every score comparison of the repository
+ * queries would then need $expr arithmetic and could not use an index on marks.score
+ */
+@Configuration
+@ConditionalOnProperty(name = "students.marks.compact-encoding", havingValue = "true")
+public class MarksCompactEncodingConfig {
+	@Bean
+	MongoCustomConversions mongoCustomConversions() {
+		return compactConversions();
+	}
+
+	@Bean
+	static BeanPostProcessor compactFieldNamesPostProcessor() {
+		return new BeanPostProcessor() {
+			@Override
+			public Object postProcessBeforeInitialization(Object bean, String beanName) {
+				if (bean instanceof MongoMappingContext mappingContext) {
+					mappingContext.setFieldNamingStrategy(CompactFieldNamingStrategy.INSTANCE);
+				}
+				return bean;
+			}
+		};
+	}
+
+	public static MongoCustomConversions compactConversions() {
+		return new MongoCustomConversions(List.of(LocalDateToEpochDayConverter.INSTANCE,
+				EpochDayToLocalDateConverter.INSTANCE));
+	}
+
+	/**
+	 * One letter keys of the mark fields, the other entities keep the property names
+	 */
+	public enum CompactFieldNamingStrategy implements FieldNamingStrategy {
+		INSTANCE;
+
+		public static final Map<String, String> MARK_FIELD_NAMES = Map.of("subject", "s", "score", "v", "date", "d");
+
+		@Override
+		public String getFieldName(PersistentProperty<?> property) {
+			return property.getOwner().getType() == Mark.class
+					? MARK_FIELD_NAMES.getOrDefault(property.getName(), property.getName())
+					: property.getName();
+		}
+	}
+
+	@WritingConverter
+	enum LocalDateToEpochDayConverter implements Converter<LocalDate, Integer> {
+		INSTANCE;
+
+		@Override
+		public Integer convert(LocalDate source) {
+			return (int) source.toEpochDay();
+		}
+	}
+
+	@ReadingConverter
+	enum EpochDayToLocalDateConverter implements Converter<Integer, LocalDate> {
+		INSTANCE;
+
+		@Override
+		public LocalDate convert(Integer source) {
+			return LocalDate.ofEpochDay(source);
+		}
+	}
+
+}
@@ -0,0 +1,191 @@
+package telran.students.config;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
+
+import org.bson.BsonType;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.*;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import telran.students.model.*;
+
+/**
+ * Rewrites the stored marks into the encoding configured by students.marks.compact-encoding,
+ * so the compact encoding may be switched on and off again.
+ * The compact encoding has one letter mark keys and epoch days instead of the BSON dates
+ * of the marks, of archived.lastDate and of the archive watermark.
+ * Every document is updated only if its marks are unchanged since they were read,
+ * the documents changed concurrently are migrated by the next pass.
+ * The encoding of the completed migration is recorded in the migrations collection,
+ * so the later startups with the same encoding look up only that record instead of scanning the marks.
+ * The application reports the readiness to accept traffic only after the migration has finished
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class MarksEncodingMigration implements ApplicationRunner {
+	private static final String MIGRATIONS_COLLECTION = "migrations";
+	private static final String MARKS_ENCODING_MIGRATION_ID = "marks-encoding";
+	private static final String COMPACT_FIELD = "compact";
+	private static final String ID_DOCUMENT_FIELD = "_id";
+	private static final String MARKS_FIELD = "marks";
+	private static final String DATE_FIELD = "date";
+	private static final String ARCHIVED_FIELD = "archived";
+	private static final String LAST_DATE_FIELD = "lastDate";
+	private static final String ARCHIVED_LAST_DATE_FIELD = "archived.lastDate";
+	private static final String WATERMARK_BEFORE_FIELD = "before";
+	private static final Map<String, String> COMPACT_MARK_FIELDS =
+			MarksCompactEncodingConfig.CompactFieldNamingStrategy.MARK_FIELD_NAMES;
+	private static final Map<String, String> DEFAULT_MARK_FIELDS = COMPACT_MARK_FIELDS.entrySet().stream()
+			.collect(Collectors.toMap(Map.Entry::getValue, Map.Entry::getKey));
+	final MongoTemplate mongoTemplate;
+	@Value("${students.marks.compact-encoding:false}")
+	boolean compactEncoding;
+
+	@Override
+	public void run(ApplicationArguments args) {
+		MongoCollection<Document> migrations = mongoTemplate.getCollection(MIGRATIONS_COLLECTION);
+		Bson migrationFilter = Filters.eq(ID_DOCUMENT_FIELD, MARKS_ENCODING_MIGRATION_ID);
+		Document migration = migrations.find(migrationFilter).first();
+		if (migration != null && migration.getBoolean(COMPACT_FIELD) == compactEncoding) {
+			log.debug("marks are already in the {} encoding", getEncodingName());
+		} else {
+			int res = migrate(StudentDoc.class) + migrate(MarksArchiveDoc.class) + migrateWatermark();
+			log.debug("{} documents have been migrated to the {} encoding", res, getEncodingName());
+			if (getRemaining(StudentDoc.class, getMigrationFilter()) == 0
+					&& getRemaining(MarksArchiveDoc.class, getMigrationFilter()) == 0
+					&& getRemaining(MarksArchiveWatermark.class, getWatermarkFilter()) == 0) {
+				migrations.updateOne(migrationFilter, Updates.set(COMPACT_FIELD, compactEncoding),
+						new UpdateOptions().upsert(true));
+			}
+		}
+	}
+
+	/**
+	 * 
+	 * @param entityClass
+	 * @return amount of the documents of a given entity class having been migrated
+	 */
+	public int migrate(Class<?> entityClass) {
+		MongoCollection<Document> collection = getCollection(entityClass);
+		Bson filter = getMigrationFilter();
+		int res = 0;
+		int migrated;
+		do {
+			migrated = 0;
+			for (Document document : collection.find(filter)) {
+				if (migrateDocument(collection, document)) {
+					migrated++;
+				}
+			}
+			res += migrated;
+		} while (migrated > 0);
+		long remaining = getRemaining(entityClass, filter);
+		if (remaining > 0) {
+			log.warn("{} documents of {} have not been migrated", remaining, entityClass.getSimpleName());
+		}
+		return res;
+	}
+
+	private Bson getMigrationFilter() {
+		List<Bson> filters = new ArrayList<>(getSourceMarkFields().keySet().stream()
+				.map(key -> Filters.exists(MARKS_FIELD + "." + key)).toList());
+		filters.add(Filters.type(ARCHIVED_LAST_DATE_FIELD, getSourceDateType()));
+		return Filters.or(filters);
+	}
+
+	private long getRemaining(Class<?> entityClass, Bson filter) {
+		return getCollection(entityClass).countDocuments(filter);
+	}
+
+	private Bson getWatermarkFilter() {
+		return Filters.and(Filters.eq(ID_DOCUMENT_FIELD, MarksArchiveWatermark.MARKS_ID),
+				Filters.type(WATERMARK_BEFORE_FIELD, getSourceDateType()));
+	}
+
+	private int migrateWatermark() {
+		Bson filter = getWatermarkFilter();
+		MongoCollection<Document> collection = getCollection(MarksArchiveWatermark.class);
+		Document watermark = collection.find(filter).first();
+		return watermark == null ? 0 : (int) collection.updateOne(Filters.and(filter,
+				Filters.eq(WATERMARK_BEFORE_FIELD, watermark.get(WATERMARK_BEFORE_FIELD))),
+				Updates.set(WATERMARK_BEFORE_FIELD, getDateConverter().apply(watermark.get(WATERMARK_BEFORE_FIELD))))
+				.getModifiedCount();
+	}
+
+	private MongoCollection<Document> getCollection(Class<?> entityClass) {
+		return mongoTemplate.getCollection(mongoTemplate.getCollectionName(entityClass));
+	}
+
+	private boolean migrateDocument(MongoCollection<Document> collection, Document document) {
+		List<Document> marks = document.getList(MARKS_FIELD, Document.class, List.of());
+		List<Document> migratedMarks = marks.stream().map(this::migrateMark).toList();
+		List<Bson> filters = new ArrayList<>(List.of(Filters.eq(ID_DOCUMENT_FIELD, document.get(ID_DOCUMENT_FIELD)),
+				Filters.eq(MARKS_FIELD, marks)));
+		List<Bson> updates = new ArrayList<>(List.of(Updates.set(MARKS_FIELD, migratedMarks)));
+		Document archived = document.get(ARCHIVED_FIELD, Document.class);
+		Object lastDate = archived == null ? null : archived.get(LAST_DATE_FIELD);
+		if (lastDate != null) {
+			filters.add(Filters.eq(ARCHIVED_LAST_DATE_FIELD, lastDate));
+			updates.add(Updates.set(ARCHIVED_LAST_DATE_FIELD, getDateConverter().apply(lastDate)));
+		}
+		return collection.updateOne(Filters.and(filters), Updates.combine(updates)).getModifiedCount() > 0;
+	}
+
+	private Document migrateMark(Document mark) {
+		Map<String, String> sourceFields = getSourceMarkFields();
+		Document res = new Document();
+		mark.forEach((key, value) -> {
+			String field = sourceFields.getOrDefault(key, key);
+			res.append(field, DATE_FIELD.equals(key) || DATE_FIELD.equals(sourceFields.get(key))
+					? getDateConverter().apply(value) : value);
+		});
+		return res;
+	}
+
+	/**
+	 * 
+	 * @return keys to be replaced mapped to the keys of the configured encoding
+	 */
+	private Map<String, String> getSourceMarkFields() {
+		return compactEncoding ? COMPACT_MARK_FIELDS : DEFAULT_MARK_FIELDS;
+	}
+
+	private String getEncodingName() {
+		return compactEncoding ? "compact" : "default";
+	}
+
+	private BsonType getSourceDateType() {
+		return compactEncoding ? BsonType.DATE_TIME : BsonType.INT32;
+	}
+
+	private UnaryOperator<Object> getDateConverter() {
+		return compactEncoding ? this::toEpochDay : this::toDate;
+	}
+
+	private Object toEpochDay(Object date) {
+		return date instanceof Date oldDate
+				? (int) oldDate.toInstant().atZone(ZoneId.systemDefault()).toLocalDate().toEpochDay()
+				: date;
+	}
+
+	private Object toDate(Object epochDay) {
+		return epochDay instanceof Integer day
+				? Date.from(LocalDate.ofEpochDay(day).atStartOfDay(ZoneId.systemDefault()).toInstant())
+				: epochDay;
+	}
+
+}
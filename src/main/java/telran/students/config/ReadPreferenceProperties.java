@@ -0,0 +1,45 @@
+package telran.students.config;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+import org.springframework.validation.annotation.Validated;
+
+import com.mongodb.ReadPreference;
+
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Read preferences of the analytic queries (students.read-preference.*).
+ * A method specific mode (methods.get-best-students=secondary) overrides the analytic mode.
+ * A non primary mode is bounded by max-staleness-seconds (90 seconds at least).
+ * The modes are parsed and the staleness is checked at binding, so a wrong configuration fails the startup,
+ * also with the lazy initialization of the fast-startup profile.
+ * The queries reading the student's own marks always go to the primary
+ */
+@Component
+@Lazy(false)
+@ConfigurationProperties(prefix = "students.read-preference")
+@Validated
+@Getter
+@Setter
+public class ReadPreferenceProperties {
+	@NotNull
+	ReadPreference analytic = ReadPreference.primary();
+	Map<String, ReadPreference> methods = new HashMap<>();
+	@Min(90)
+	long maxStalenessSeconds = 90;
+
+	public ReadPreference getAnalyticReadPreference(String method) {
+		ReadPreference mode = methods.getOrDefault(method, analytic);
+		return mode.equals(ReadPreference.primary()) ? mode
+				: ReadPreference.valueOf(mode.getName(), List.of(), maxStalenessSeconds, TimeUnit.SECONDS);
+	}
+
+}
@@ -0,0 +1,20 @@
+package telran.students.model;
+
+import java.util.*;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import telran.students.dto.Mark;
+
+@Document(collection="marksArchive")
+@Getter
+@NoArgsConstructor
+public class MarksArchiveDoc {
+	@Id
+	long id;
+	List<Mark> marks = new ArrayList<>();
+
+}
@@ -0,0 +1,23 @@
+package telran.students.model;
+
+import java.time.LocalDate;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+/**
+ * All the archived marks have dates before the watermark
+ */
+@Document(collection="marksArchiveWatermark")
+@Getter
+@NoArgsConstructor
+public class MarksArchiveWatermark {
+	public static final String MARKS_ID = "marks";
+	@Id
+	String id;
+	LocalDate before;
+
+}
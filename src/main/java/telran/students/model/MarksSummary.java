@@ -0,0 +1,22 @@
+package telran.students.model;
+
+import java.time.LocalDate;
+import java.util.*;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+@Getter
+@NoArgsConstructor
+@AllArgsConstructor
+public class MarksSummary {
+	int count;
+	long sumScore;
+	int goodCount;
+	int minScore;
+	int maxScore;
+	Set<String> subjects = new HashSet<>();
+	LocalDate lastDate;
+
+}
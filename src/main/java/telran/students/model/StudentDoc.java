@@ -19,6 +19,7 @@ public class StudentDoc {
 	@Setter
 	String phone;
 	List<Mark> marks = new ArrayList<>();
+	MarksSummary archived;
 	public StudentDoc(Student student) {
 		id = student.id();
 		phone = student.phone();
@@ -1,33 +1,41 @@
 package telran.students.repo;
 
-import java.time.LocalDate;
 import java.util.List;
 
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.data.mongodb.repository.Query;
+import org.springframework.data.mongodb.repository.ReadPreference;
 
 import telran.students.model.StudentDoc;
 
 public interface StudentRepo extends MongoRepository<StudentDoc, Long>{
+	@ReadPreference("primary")
 	@Query(value="{id:?0}", fields = "{id:1, phone:1}")
 	StudentDoc findStudentNoMarks(long id);
-	@Query(value="{id:?0}", fields = "{id:0, marks:1}")
+	@ReadPreference("primary")
+	@Query(value="{id:?0}", fields = "{id:0, marks:1, archived:1}")
 	StudentDoc findStudentOnlyMarks(long id);
+	@ReadPreference("primary")
+	@Query(value="{id:?0}", fields = "{id:1, archived:1}")
+	StudentDoc findStudentArchived(long id);
 	/*******************************************/
 	IdPhone findByPhone(String phone);
 	List<IdPhone> findByPhoneRegex(String regex);
-	List<IdPhone> findByMarksDate(LocalDate date);
-	List<IdPhone> findByMarksDateBetween(LocalDate firstDate, LocalDate lastDate);
+	@Query("{$and:[{$or:[{'marks.subject':?0},{'archived.subjects':?0}]},"
+			+ "{$or:[{'marks.score':{$gt:?1}},{'archived.maxScore':{$gt:?1}}]}]}")
 	List<IdPhone> findByMarksSubjectAndMarksScoreGreaterThan(String subject, int markThreshold);
 	/**********************/
-	@Query("{$and:[{marks:{$elemMatch:{score:{$gt:?0}}}},{marks:{$not:{$elemMatch:{score:{$lte:?0}}}}}]}")
+	@Query("{$and:[{$or:[{marks:{$elemMatch:{score:{$gt:?0}}}},{'archived.maxScore':{$gt:?0}}]},"
+			+ "{marks:{$not:{$elemMatch:{score:{$lte:?0}}}}},{'archived.minScore':{$not:{$lte:?0}}}]}")
 	List<IdPhone> findAllGoodMarks(int markThreshold);
 	/**********************/
-	@Query("{$expr:{$lt:[{$size:$marks}, ?0]}}")
+	@Query("{$expr:{$lt:[{$add:[{$size:$marks}, {$ifNull:['$archived.count', 0]}]}, ?0]}}")
 	List<IdPhone> findFewMarks(int nMarks);
-	@Query("{$and:[{marks:{$elemMatch:{subject:?0}}},{marks:{$not:{$elemMatch:{score:{$lte:?1}}}}}]}")
+	@Query("{$and:[{$or:[{marks:{$elemMatch:{subject:?0}}},{'archived.subjects':?0}]},"
+			+ "{marks:{$not:{$elemMatch:{score:{$lte:?1}}}}},{'archived.minScore':{$not:{$lte:?1}}}]}")
 	List<IdPhone> findAllGoodMarksSuject(String subject, int thresholdScore);
-	@Query("{$expr:{$and:[{$gte:[{$size:$marks}, ?0]},{$lte:[{$size:$marks}, ?1]}]}}")
+	@Query("{$expr:{$and:[{$gte:[{$add:[{$size:$marks}, {$ifNull:['$archived.count', 0]}]}, ?0]},"
+			+ "{$lte:[{$add:[{$size:$marks}, {$ifNull:['$archived.count', 0]}]}, ?1]}]}}")
 	List<IdPhone> findMarksAmountBetween(int min, int max);
 
 }
@@ -0,0 +1,136 @@
+package telran.students.service;
+
+import java.time.LocalDate;
+import java.util.IntSummaryStatistics;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.Sort.Direction;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.*;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.mongodb.client.model.CreateCollectionOptions;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import telran.students.dto.Mark;
+import telran.students.model.*;
+
+/**
+ * Moves the marks older than a configured age from the students collection
+ * into the compressed per student archive (students.marks.archive.enabled=true).
+ * The summary of the archived marks is kept in the student document
+ * for the aggregations computing the averages and the rankings.
+ * The marks of a student are moved in one transaction, so the archiving requires a replica set.
+ * A move failed on a concurrent update of the student is repeated by the next run
+ */
+@Component
+@ConditionalOnProperty(name = "students.marks.archive.enabled", havingValue = "true")
+@Lazy(false)
+@RequiredArgsConstructor
+@Slf4j
+public class MarksArchiver {
+	private static final String ID_FIELD = "id";
+	private static final String MARKS_FIELD = "marks";
+	private static final String MARKS_DATE_FIELD = "marks.date";
+	private static final String ARCHIVED_COUNT_FIELD = "archived.count";
+	private static final String ARCHIVED_SUM_SCORE_FIELD = "archived.sumScore";
+	private static final String ARCHIVED_GOOD_COUNT_FIELD = "archived.goodCount";
+	private static final String ARCHIVED_MIN_SCORE_FIELD = "archived.minScore";
+	private static final String ARCHIVED_MAX_SCORE_FIELD = "archived.maxScore";
+	private static final String ARCHIVED_SUBJECTS_FIELD = "archived.subjects";
+	private static final String ARCHIVED_LAST_DATE_FIELD = "archived.lastDate";
+	private static final String WATERMARK_BEFORE_FIELD = "before";
+	private static final String ARCHIVE_STORAGE_OPTIONS = "block_compressor=zstd";
+	final MongoTemplate mongoTemplate;
+	final TransactionTemplate transactionTemplate;
+	@Value("${students.marks.archive.age-days:365}")
+	int ageDays;
+
+	@PostConstruct
+	void createArchiveCollection() {
+		if (!mongoTemplate.collectionExists(MarksArchiveDoc.class)) {
+			String collectionName = mongoTemplate.getCollectionName(MarksArchiveDoc.class);
+			mongoTemplate.getDb().createCollection(collectionName, new CreateCollectionOptions()
+					.storageEngineOptions(new Document("wiredTiger",
+							new Document("configString", ARCHIVE_STORAGE_OPTIONS))));
+			log.debug("archive collection {} has been created", collectionName);
+		}
+		mongoTemplate.indexOps(MarksArchiveDoc.class).ensureIndex(new Index(MARKS_DATE_FIELD, Direction.ASC));
+	}
+
+	@Scheduled(cron = "${students.marks.archive.cron:0 0 3 * * *}")
+	public void archiveOldMarks() {
+		archiveMarks(LocalDate.now().minusDays(ageDays));
+	}
+
+	/**
+	 * 
+	 * @param before
+	 * @return amount of the archived marks having date before a given date
+	 */
+	public int archiveMarks(LocalDate before) {
+		//the watermark is raised before any mark is moved,
+		//so a reader skipping the archive by the watermark misses no moved mark
+		mongoTemplate.upsert(new Query(Criteria.where(ID_FIELD).is(MarksArchiveWatermark.MARKS_ID)),
+				new Update().max(WATERMARK_BEFORE_FIELD, before), MarksArchiveWatermark.class);
+		Query query = new Query(Criteria.where(MARKS_DATE_FIELD).lt(before));
+		query.fields().include(ID_FIELD);
+		int res = 0;
+		try (Stream<StudentDoc> studentDocs = mongoTemplate.stream(query, StudentDoc.class)) {
+			res = studentDocs.mapToInt(sd -> archiveStudentMarks(sd.getId(), before)).sum();
+		}
+		log.debug("{} marks with dates before {} have been archived", res, before);
+		return res;
+	}
+
+	private int archiveStudentMarks(long id, LocalDate before) {
+		int res = 0;
+		try {
+			res = transactionTemplate.execute(status -> moveStudentMarks(id, before));
+		} catch (DataAccessException | TransactionException e) {
+			log.warn("marks of student with id {} have not been archived: {}", id, e.getMessage());
+		}
+		return res;
+	}
+
+	private int moveStudentMarks(long id, LocalDate before) {
+		Query query = new Query(Criteria.where(ID_FIELD).is(id));
+		Query marksQuery = Query.of(query);
+		marksQuery.fields().include(ID_FIELD, MARKS_FIELD);
+		StudentDoc studentDoc = mongoTemplate.findOne(marksQuery, StudentDoc.class);
+		List<Mark> oldMarks = studentDoc == null ? List.of()
+				: studentDoc.getMarks().stream().filter(m -> m.date().isBefore(before)).toList();
+		if (!oldMarks.isEmpty()) {
+			Update archiveUpdate = new Update();
+			archiveUpdate.push(MARKS_FIELD).each(oldMarks.toArray());
+			mongoTemplate.upsert(query, archiveUpdate, MarksArchiveDoc.class);
+			IntSummaryStatistics scores = oldMarks.stream().mapToInt(Mark::score).summaryStatistics();
+			Update studentUpdate = new Update();
+			studentUpdate.addToSet(ARCHIVED_SUBJECTS_FIELD).each(oldMarks.stream().map(Mark::subject).distinct().toArray());
+			studentUpdate.pullAll(MARKS_FIELD, oldMarks.toArray())
+				.inc(ARCHIVED_COUNT_FIELD, oldMarks.size())
+				.inc(ARCHIVED_SUM_SCORE_FIELD, scores.getSum())
+				.min(ARCHIVED_MIN_SCORE_FIELD, scores.getMin())
+				.max(ARCHIVED_MAX_SCORE_FIELD, scores.getMax())
+				.inc(ARCHIVED_GOOD_COUNT_FIELD, oldMarks.stream()
+						.filter(m -> m.score() > StudentsServiceImpl.BEST_STUDENTS_MARK_THRESHOLD).count())
+				.max(ARCHIVED_LAST_DATE_FIELD, oldMarks.stream().map(Mark::date).max(LocalDate::compareTo).get());
+			mongoTemplate.updateFirst(query, studentUpdate, StudentDoc.class);
+			log.trace("marks {} of student with id {} have been archived", oldMarks, id);
+		}
+		return oldMarks.size();
+	}
+
+}
@@ -1,9 +1,9 @@
 package telran.students.service;
 
 import java.time.LocalDate;
-import java.time.ZoneId;
 import java.time.temporal.TemporalAdjusters;
-import java.util.List;
+import java.util.*;
+import java.util.stream.*;
 
 import org.bson.Document;
 import org.springframework.data.domain.Sort.*;
@@ -15,12 +15,17 @@ import org.springframework.transaction.annotation.Transactional;
 
 import org.springframework.dao.DuplicateKeyException;
 
+import com.mongodb.ClientSessionOptions;
+import com.mongodb.ReadPreference;
+import com.mongodb.client.ClientSession;
+
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import telran.students.dto.*;
+import telran.students.config.ReadPreferenceProperties;
 import telran.students.exceptions.StudentIllegalStateException;
 import telran.students.exceptions.StudentNotFoundException;
-import telran.students.model.StudentDoc;
+import telran.students.model.*;
 import telran.students.repo.*;
 @Service
 @RequiredArgsConstructor
@@ -32,15 +37,26 @@ public class StudentsServiceImpl implements StudentsService {
 	private static final String MARKS_FIELD = "marks";
 	private static final String COUNT_FIELD = "count";
 	private static final String ID_DOCUMENT_FIELD = "_id";
-	private static final int BEST_STUDENTS_MARK_THRESHOLD = 80;
+	static final int BEST_STUDENTS_MARK_THRESHOLD = 80;
 	private static final String AVG_SCORE_FIELD = "avgScore";
 	private static final String MARKS_SUBJECT_FIELD = "marks.subject";
 	private static final String MARKS_DATE_FIELD = "marks.date";
-	private static final String SCORE_FIELD = "score";
-	private static final String DATE_FIELD = "date";
-	private static final String SUBJECT_FIELD = "subject";
+	private static final String ARCHIVED_COUNT_FIELD = "archived.count";
+	private static final String ARCHIVED_SUM_SCORE_FIELD = "archived.sumScore";
+	private static final String ARCHIVED_GOOD_COUNT_FIELD = "archived.goodCount";
+	private static final String SCORE_VARIABLE = "score";
+	private static final String PHONE_FIELD = "phone";
+	private static final String MARKS_MONTH_YEAR_METHOD = "get-students-marks-month-year";
+	private static final String AVG_SCORE_GREATER_METHOD = "get-student-avg-score-greater";
+	private static final String BEST_STUDENTS_METHOD = "get-best-students";
+	private static final String WORST_STUDENTS_METHOD = "get-worst-students";
+	private static final AggregationOptions PRIMARY_OPTIONS = AggregationOptions.builder()
+			.readPreference(ReadPreference.primary()).build();
+	private static final ClientSessionOptions CAUSALLY_CONSISTENT_SESSION = ClientSessionOptions.builder()
+			.causallyConsistent(true).build();
 	final StudentRepo studentRepo;
 	final MongoTemplate mongoTemplate;
+	final ReadPreferenceProperties readPreferenceProperties;
 	FindAndModifyOptions options = new FindAndModifyOptions().returnNew(true).upsert(false);
 	
 	@Override
@@ -71,18 +87,25 @@ public class StudentsServiceImpl implements StudentsService {
 	}
 
 	@Override
-	@Transactional
 	public Student updatePhoneNumber(long id, String phoneNumber) {
-		StudentDoc studentDoc = studentRepo.findById(id).orElseThrow(() -> new StudentNotFoundException());
+		Query query = new Query(Criteria.where(ID_FIELD).is(id));
+		query.fields().include(ID_FIELD, PHONE_FIELD);
+		Update update = new Update();
+		update.set(PHONE_FIELD, phoneNumber);
+		StudentDoc studentDoc = mongoTemplate.findAndModify(query, update, StudentDoc.class);
+		if(studentDoc == null) {
+			log.error("student with id: {} not found", id);
+			throw new StudentNotFoundException();
+		}
 		log.debug("student with id {}, old phone number {}, new phone number {}", id, studentDoc.getPhone(),
 				phoneNumber);
-		studentDoc.setPhone(phoneNumber);
-		Student res = studentRepo.save(studentDoc).build();
+		Student res = new Student(id, phoneNumber);
 		log.debug("student {} has been saved", res);
 		return res;
 	}
 
 	@Override
+	@Transactional
 	public Student removeStudent(long id) {
 		Query query = new Query(Criteria.where(ID_FIELD).is(id));
 		StudentDoc studentDoc = mongoTemplate.findAndRemove(query, StudentDoc.class);
@@ -90,6 +113,8 @@ public class StudentsServiceImpl implements StudentsService {
 			log.error("student with id {} not found", id);
 			throw new StudentNotFoundException();
 		}
+		//the archived marks must not be inherited by a new student with the same id
+		mongoTemplate.remove(query, MarksArchiveDoc.class);
 		log.debug("student with id {} has been removed", id);
 		return studentDoc.build();
 	}
@@ -107,12 +132,19 @@ public class StudentsServiceImpl implements StudentsService {
 	}
 
 	@Override
+	@Transactional(readOnly = true)
 	public List<Mark> getMarks(long id) {
 		StudentDoc studentDoc = studentRepo.findStudentOnlyMarks(id);
 		if(studentDoc == null) {
 			throw new StudentNotFoundException();
 		}
 		List<Mark> res = studentDoc.getMarks();
+		if(isArchiveNeeded(studentDoc.getArchived(), null)) {
+			MarksArchiveDoc archiveDoc = mongoTemplate.findById(id, MarksArchiveDoc.class);
+			if(archiveDoc != null) {
+				res = Stream.concat(archiveDoc.getMarks().stream(), res.stream()).toList();
+			}
+		}
 		log.debug("phone: {}, id: {}", studentDoc.getPhone(), studentDoc.getId());
 		log.debug("marks of found student {}", res);
 		return res;
@@ -155,8 +187,8 @@ public class StudentsServiceImpl implements StudentsService {
 
 	@Override
 	public List<Student> getStudentsMarksDate(LocalDate date) {
-		List<IdPhone> idPhones = studentRepo.findByMarksDate(date);
-		List<Student> res = idPhonesToStudents(idPhones);
+		List<Student> res = getStudentsMarks(Criteria.where(MARKS_DATE_FIELD).is(date), date,
+				ReadPreference.primary());
 		log.debug("students {}", res);
 		return res;
 	}
@@ -169,12 +201,52 @@ public class StudentsServiceImpl implements StudentsService {
 	public List<Student> getStudentsMarksMonthYear(int month, int year) {
 		LocalDate firstDate = LocalDate.of(year, month, 1);
 		LocalDate lastDate = firstDate.with(TemporalAdjusters.lastDayOfMonth());
-		List<IdPhone> idPhones = studentRepo.findByMarksDateBetween(firstDate, lastDate);
-		List<Student> res = idPhonesToStudents(idPhones);
+		List<Student> res = getStudentsMarks(Criteria.where(MARKS_DATE_FIELD).gte(firstDate).lte(lastDate),
+				firstDate, readPreferenceProperties.getAnalyticReadPreference(MARKS_MONTH_YEAR_METHOD));
 		log.debug("students {}", res);
 		return res;
 	}
 
+	private List<Student> getStudentsMarks(Criteria marksCriteria, LocalDate from, ReadPreference readPreference) {
+		// the watermark and the archive are read after the students in one causally consistent session,
+		// so they reflect at least the state of the students read even on another secondary
+		// and the marks moved in between are found in the archive
+		return mongoTemplate.withSession(CAUSALLY_CONSISTENT_SESSION).execute(operations -> {
+			Query query = new Query(marksCriteria).withReadPreference(readPreference);
+			query.fields().include(ID_FIELD, PHONE_FIELD);
+			List<Student> students = operations.find(query, StudentDoc.class).stream()
+					.map(StudentDoc::build).toList();
+			return isArchiveQueryNeeded(operations, from, readPreference)
+					? addArchivedStudents(operations, students, marksCriteria, readPreference) : students;
+		}, ClientSession::close);
+	}
+
+	private boolean isArchiveQueryNeeded(MongoOperations operations, LocalDate from, ReadPreference readPreference) {
+		Query query = new Query(Criteria.where(ID_FIELD).is(MarksArchiveWatermark.MARKS_ID))
+				.withReadPreference(readPreference);
+		MarksArchiveWatermark watermark = operations.findOne(query, MarksArchiveWatermark.class);
+		return watermark != null && from.isBefore(watermark.getBefore());
+	}
+
+	private List<Student> addArchivedStudents(MongoOperations operations, List<Student> students,
+			Criteria marksCriteria, ReadPreference readPreference) {
+		Query archiveQuery = new Query(marksCriteria).withReadPreference(readPreference);
+		archiveQuery.fields().include(ID_FIELD);
+		Set<Long> ids = students.stream().map(Student::id).collect(Collectors.toSet());
+		List<Long> archivedIds = operations.find(archiveQuery, MarksArchiveDoc.class).stream()
+				.map(MarksArchiveDoc::getId).filter(id -> !ids.contains(id)).toList();
+		List<Student> res = students;
+		if (!archivedIds.isEmpty()) {
+			Query studentsQuery = new Query(Criteria.where(ID_FIELD).in(archivedIds))
+					.withReadPreference(readPreference);
+			studentsQuery.fields().include(ID_FIELD, PHONE_FIELD);
+			res = Stream.concat(students.stream(),
+					operations.find(studentsQuery, StudentDoc.class).stream().map(StudentDoc::build))
+					.sorted(Comparator.comparingLong(Student::id)).toList();
+		}
+		return res;
+	}
+
 	@Override
 	public List<Student> getStudentsGoodSubjectMark(String subject, int markThreshold) {
 		List<IdPhone> idPhones = studentRepo.findByMarksSubjectAndMarksScoreGreaterThan(subject, markThreshold);
@@ -184,41 +256,68 @@ public class StudentsServiceImpl implements StudentsService {
 	}
 
 	@Override
+	@Transactional(readOnly = true)
 	public List<Mark> getStudentMarksSubject(long id, String subject) {
 		MatchOperation matchSubject = Aggregation.match(Criteria.where(MARKS_SUBJECT_FIELD).is(subject));
-		List<Mark> res = getStudentMarks(id, matchSubject);
+		List<Mark> res = getStudentMarks(id, matchSubject, null);
 		log.debug("marks of subject {} of student {} ar {}", subject, id, res);
 		return res;
 	}
 
-	private List<Mark> getStudentMarks(long id, MatchOperation matchMarks) {
-		if(!studentRepo.existsById(id)) {
+	private List<Mark> getStudentMarks(long id, MatchOperation matchMarks, LocalDate from) {
+		StudentDoc studentDoc = studentRepo.findStudentArchived(id);
+		if(studentDoc == null) {
 			throw new StudentNotFoundException();
 		}
 		MatchOperation matchStudentOperation = Aggregation.match(Criteria.where(ID_FIELD).is(id));
 		UnwindOperation unwindOperation = Aggregation.unwind(MARKS_FIELD);
-		ProjectionOperation projectOperation = Aggregation.project(MARKS_SUBJECT_FIELD, 
-				MARKS_SCORE_FIELD, MARKS_DATE_FIELD);
+		//the mark itself becomes the result, so it is read with the keys it is stored with
+		ReplaceRootOperation replaceRootOperation = Aggregation.replaceRoot(MARKS_FIELD);
+		//the student's own marks are read from the primary as the repository reads of the student
 		Aggregation pipeline = Aggregation.newAggregation(matchStudentOperation, unwindOperation, 
-				matchMarks, projectOperation);
-		var aggregationResult = mongoTemplate.aggregate(pipeline, StudentDoc.class, Document.class);
-		List<Document> documents = aggregationResult.getMappedResults();
-		log.debug("received {} documents", documents.size());
-		List<Mark> res = documents.stream().map(d -> new Mark(d.getString(SUBJECT_FIELD), 
-				d.getInteger(SCORE_FIELD), d.getDate(DATE_FIELD).toInstant()
-				.atZone(ZoneId.systemDefault()).toLocalDate())).toList();
+				matchMarks, replaceRootOperation).withOptions(PRIMARY_OPTIONS);
+		List<Mark> res = mongoTemplate.aggregate(pipeline, StudentDoc.class, Mark.class).getMappedResults();
+		if(isArchiveNeeded(studentDoc.getArchived(), from)) {
+			List<Mark> archivedMarks = mongoTemplate.aggregate(pipeline, MarksArchiveDoc.class, Mark.class)
+					.getMappedResults();
+			log.debug("received {} archived marks", archivedMarks.size());
+			res = Stream.concat(archivedMarks.stream(), res.stream()).toList();
+		}
+		log.debug("received {} marks", res.size());
 		return res;
 	}
 
+	private boolean isArchiveNeeded(MarksSummary archived, LocalDate from) {
+		return archived != null && archived.getCount() > 0
+				&& (from == null || !from.isAfter(archived.getLastDate()));
+	}
+
+	private AggregationOptions getAnalyticOptions(String method) {
+		return AggregationOptions.builder()
+				.readPreference(readPreferenceProperties.getAnalyticReadPreference(method)).build();
+	}
+
+	private AggregationExpression archivedOrZero(String archivedField) {
+		return ConditionalOperators.ifNull(archivedField).then(0);
+	}
+
 	@Override
 	public List<StudentAvgScore> getStudentAvgScoreGreater(int avgThreshold) {
-		UnwindOperation unwindOperation = Aggregation.unwind(MARKS_FIELD);
-		GroupOperation groupOperation = Aggregation.group(ID_FIELD).avg(MARKS_SCORE_FIELD).as(AVG_SCORE_FIELD);
+		MatchOperation matchMarksOperation = Aggregation.match(new Criteria().orOperator(
+				Criteria.where(MARKS_FIELD).not().size(0), Criteria.where(ARCHIVED_COUNT_FIELD).gt(0)));
+		AggregationExpression sumScores = ArithmeticOperators.Add
+				.valueOf(AccumulatorOperators.Sum.sumOf(MARKS_SCORE_FIELD))
+				.add(archivedOrZero(ARCHIVED_SUM_SCORE_FIELD));
+		AggregationExpression countMarks = ArithmeticOperators.Add
+				.valueOf(ArrayOperators.Size.lengthOfArray(MARKS_FIELD))
+				.add(archivedOrZero(ARCHIVED_COUNT_FIELD));
+		ProjectionOperation projectOperation = Aggregation.project(ID_FIELD)
+				.and(ArithmeticOperators.Divide.valueOf(sumScores).divideBy(countMarks)).as(AVG_SCORE_FIELD);
 		MatchOperation matchOperation = Aggregation.match(Criteria.where(AVG_SCORE_FIELD)
 				.gt(avgThreshold));
 		SortOperation sortOperation = Aggregation.sort(Direction.DESC, AVG_SCORE_FIELD);
-		Aggregation pipeline = Aggregation.newAggregation(unwindOperation, groupOperation, matchOperation,
-				sortOperation);
+		Aggregation pipeline = Aggregation.newAggregation(matchMarksOperation, projectOperation, matchOperation,
+				sortOperation).withOptions(getAnalyticOptions(AVG_SCORE_GREATER_METHOD));
 		var aggregationResult = mongoTemplate.aggregate(pipeline, StudentDoc.class, Document.class);
 		List<Document> documents = aggregationResult.getMappedResults();
 		List<StudentAvgScore> res = documents.stream().map(d -> new StudentAvgScore(d.getLong(ID_DOCUMENT_FIELD)
@@ -244,10 +343,11 @@ public class StudentsServiceImpl implements StudentsService {
 	}
 
 	@Override
+	@Transactional(readOnly = true)
 	public List<Mark> getStudentMarksAtDates(long id, LocalDate from, LocalDate to) {
 		MatchOperation matchDates = Aggregation.match(Criteria.where(MARKS_DATE_FIELD).gte(from)
 				.lte(to));
-		List<Mark> res = getStudentMarks(id, matchDates);
+		List<Mark> res = getStudentMarks(id, matchDates, from);
 		log.debug("marks of the student  with id {} on dates[{}-{}] are {}",  id, from, to, res);
 		return res;
 
@@ -255,13 +355,18 @@ public class StudentsServiceImpl implements StudentsService {
 
 	@Override
 	public List<Long> getBestStudents(int nStudents) {
-		UnwindOperation unwindOperation = Aggregation.unwind(MARKS_FIELD);
-		MatchOperation matchOperation = Aggregation.match(Criteria.where(MARKS_SCORE_FIELD).gt(BEST_STUDENTS_MARK_THRESHOLD));
-		GroupOperation groupOperation = Aggregation.group(ID_FIELD).count().as(COUNT_FIELD);
-		SortOperation sortOperation = Aggregation.sort(Direction.DESC, COUNT_FIELD);
+		//the filter input is mapped to the stored key of the score, a variable path would not be
+		AggregationExpression goodMarks = ArrayOperators.Filter.filter(MARKS_SCORE_FIELD).as(SCORE_VARIABLE)
+				.by(ComparisonOperators.Gt.valueOf(SCORE_VARIABLE).greaterThanValue(BEST_STUDENTS_MARK_THRESHOLD));
+		AggregationExpression countGoodMarks = ArithmeticOperators.Add
+				.valueOf(ArrayOperators.Size.lengthOfArray(goodMarks))
+				.add(archivedOrZero(ARCHIVED_GOOD_COUNT_FIELD));
+		ProjectionOperation projectOperation = Aggregation.project(ID_FIELD).and(countGoodMarks).as(COUNT_FIELD);
+		MatchOperation matchOperation = Aggregation.match(Criteria.where(COUNT_FIELD).gt(0));
+		SortOperation sortOperation = Aggregation.sort(Direction.DESC, COUNT_FIELD).and(Direction.ASC, ID_FIELD);
 		LimitOperation limitOperation = Aggregation.limit(nStudents);
-		Aggregation pipeline = Aggregation.newAggregation(unwindOperation,matchOperation, groupOperation,
-				sortOperation, limitOperation);
+		Aggregation pipeline = Aggregation.newAggregation(projectOperation, matchOperation,
+				sortOperation, limitOperation).withOptions(getAnalyticOptions(BEST_STUDENTS_METHOD));
 		var aggregationResult = mongoTemplate.aggregate(pipeline, StudentDoc.class, Document.class);
 		List<Document> documents = aggregationResult.getMappedResults();
 		List<Long> res = documents.stream().map(d -> d.getLong(ID_DOCUMENT_FIELD)).toList();
@@ -271,13 +376,15 @@ public class StudentsServiceImpl implements StudentsService {
 
 	@Override
 	public List<Long> getWorstStudents(int nStudents) {
-		 AggregationExpression agExpres = AccumulatorOperators.Sum.sumOf(MARKS_SCORE_FIELD);
+		 AggregationExpression agExpres = ArithmeticOperators.Add
+				.valueOf(AccumulatorOperators.Sum.sumOf(MARKS_SCORE_FIELD))
+				.add(archivedOrZero(ARCHIVED_SUM_SCORE_FIELD));
 		 ProjectionOperation projectOperation = Aggregation.project(ID_FIELD)
 		            .and(agExpres).as(SUM_SCORES_FIELD);
 		 SortOperation sortOperation = Aggregation.sort(Direction.ASC, SUM_SCORES_FIELD);
 		 LimitOperation limitOperation = Aggregation.limit(nStudents);
 		 Aggregation pipeline = Aggregation.newAggregation(projectOperation,
-		            sortOperation, limitOperation);
+		            sortOperation, limitOperation).withOptions(getAnalyticOptions(WORST_STUDENTS_METHOD));
 		 var aggregationResult = mongoTemplate.aggregate(pipeline, StudentDoc.class, Document.class);
 		 List<Document> documents = aggregationResult.getMappedResults();
 	    List<Long> res = documents.stream().map(d -> d.getLong(ID_DOCUMENT_FIELD)).toList();
@@ -0,0 +1,6 @@
+package telran.students;
+
+public enum LoadOperation {
+	ADD_MARK, ADD_STUDENT, UPDATE_PHONE_NUMBER, GET_STUDENT_BY_PHONE, GET_MARKS, BEST_STUDENTS, WORST_STUDENTS
+
+}
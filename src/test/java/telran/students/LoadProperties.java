@@ -0,0 +1,28 @@
+package telran.students;
+
+import java.util.*;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import lombok.Getter;
+import lombok.Setter;
+
+@ConfigurationProperties(prefix = "load")
+@Getter
+@Setter
+public class LoadProperties {
+	long seed = 1;
+	int students = 500;
+	int marksPerStudent = 20;
+	int threads = 8;
+	int operationsPerThread = 500;
+	/** operations per thread run before the measured ones, their latencies are discarded */
+	int warmupOperationsPerThread = 200;
+	int leaderboardSize = 10;
+	/** relative weights of the operations in the workload */
+	Map<LoadOperation, Integer> mix = new EnumMap<>(LoadOperation.class);
+	/** 99th percentile latency thresholds in milliseconds */
+	Map<LoadOperation, Long> sloP99 = new EnumMap<>(LoadOperation.class);
+	String reportsDirectory = "target/load-reports";
+
+}
@@ -0,0 +1,170 @@
+package telran.students;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static telran.students.TestDb.*;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.*;
+
+import telran.students.dto.*;
+import telran.students.model.*;
+import telran.students.repo.StudentRepo;
+import telran.students.service.*;
+
+@SpringBootTest(properties = { "students.marks.archive.enabled=true",
+		"de.flapdoodle.mongodb.embedded.storage.repl-set-name=rs0",
+		"de.flapdoodle.mongodb.embedded.storage.oplog-size=10" })
+class MarksArchiveTests {
+	private static final int N_ARCHIVED_MARKS = 8;
+	private static final int N_PHONE_UPDATES = 200;
+	@Autowired
+	StudentsService studentsService;
+	@Autowired
+	MarksArchiver marksArchiver;
+	@Autowired
+	StudentRepo studentRepo;
+	@Autowired
+	MongoTemplate mongoTemplate;
+	@Autowired
+	TestDb testDb;
+
+	@BeforeEach
+	void setUp() {
+		testDb.createDb();
+		mongoTemplate.remove(new Query(), MarksArchiveDoc.class);
+		mongoTemplate.remove(new Query(), MarksArchiveWatermark.class);
+	}
+
+	private void archiveMarks() {
+		assertEquals(N_ARCHIVED_MARKS, marksArchiver.archiveMarks(DATE3));
+	}
+
+	@Test
+	void archiveMarksTest() {
+		archiveMarks();
+		assertIterableEquals(List.of(marks[0][2]), studentRepo.findById(ID1).orElseThrow().getMarks());
+		assertEquals(2, mongoTemplate.findById(ID1, MarksArchiveDoc.class).getMarks().size());
+		assertNull(mongoTemplate.findById(ID4, MarksArchiveDoc.class));
+		assertEquals(0, marksArchiver.archiveMarks(DATE3));
+	}
+
+	@Test
+	void archiveWhileUpdatingPhoneTest() throws Exception {
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		Future<?> updates = executor.submit(() -> IntStream.range(0, N_PHONE_UPDATES)
+				.forEach(i -> studentsService.updatePhoneNumber(ID1, PHONE_NOT_EXIST + i)));
+		int archived = marksArchiver.archiveMarks(DATE3);
+		updates.get();
+		executor.shutdown();
+		archived += marksArchiver.archiveMarks(DATE3);
+		assertEquals(N_ARCHIVED_MARKS, archived);
+		StudentDoc studentDoc = studentRepo.findById(ID1).orElseThrow();
+		assertEquals(PHONE_NOT_EXIST + (N_PHONE_UPDATES - 1), studentDoc.getPhone());
+		assertIterableEquals(List.of(marks[0][2]), studentDoc.getMarks());
+		assertEquals(2, studentDoc.getArchived().getCount());
+		assertEquals(2, mongoTemplate.findById(ID1, MarksArchiveDoc.class).getMarks().size());
+		assertIterableEquals(List.of(marks[0]), studentsService.getMarks(ID1));
+	}
+
+	@Test
+	void removeStudentTest() {
+		archiveMarks();
+		assertEquals(students[0], studentsService.removeStudent(ID1));
+		assertNull(mongoTemplate.findById(ID1, MarksArchiveDoc.class));
+		studentsService.addStudent(students[0]);
+		Mark mark = new Mark(SUBJECT3, 90, DATE1);
+		studentsService.addMark(ID1, mark);
+		assertEquals(1, marksArchiver.archiveMarks(DATE3));
+		assertIterableEquals(List.of(mark), studentsService.getMarks(ID1));
+		assertIterableEquals(List.of(students[1], students[2], students[5]),
+				studentsService.getStudentsMarksDate(DATE2));
+	}
+
+	@Test
+	void getMarksTest() {
+		archiveMarks();
+		for (int i = 0; i < students.length; i++) {
+			assertIterableEquals(List.of(marks[i]), studentsService.getMarks(students[i].id()));
+		}
+	}
+
+	@Test
+	void studentMarksAtDatesTest() {
+		archiveMarks();
+		List<Mark> expected = List.of(new Mark(SUBJECT3, 70, DATE1), new Mark(SUBJECT4, 80, DATE2),
+				new Mark(SUBJECT1, 65, DATE3));
+		assertIterableEquals(expected, studentsService.getStudentMarksAtDates(ID3, DATE1, DATE3));
+		assertIterableEquals(List.of(new Mark(SUBJECT4, 80, DATE4)),
+				studentsService.getStudentMarksAtDates(ID3, DATE4, LocalDate.of(2024, 02, 20)));
+	}
+
+	@Test
+	void studentMarksSubjectTest() {
+		archiveMarks();
+		List<Mark> expected = List.of(new Mark(SUBJECT1, 70, DATE1), new Mark(SUBJECT1, 80, DATE2));
+		assertIterableEquals(expected, studentsService.getStudentMarksSubject(ID1, SUBJECT1));
+	}
+
+	@Test
+	void archiveWatermarkTest() {
+		archiveMarks();
+		assertEquals(DATE3, mongoTemplate.findById(MarksArchiveWatermark.MARKS_ID, MarksArchiveWatermark.class)
+				.getBefore());
+		assertTrue(mongoTemplate.indexOps(MarksArchiveDoc.class).getIndexInfo().stream()
+				.anyMatch(index -> index.isIndexForFields(List.of("marks.date"))));
+		//a mark at or after the watermark is never looked up in the archive
+		mongoTemplate.upsert(new Query(Criteria.where("id").is(ID7)),
+				new Update().push("marks", new Mark(SUBJECT1, 90, DATE4)), MarksArchiveDoc.class);
+		assertIterableEquals(List.of(students[2], students[3], students[5]),
+				studentsService.getStudentsMarksDate(DATE4));
+		//a month starting before the watermark is looked up in the archive
+		assertIterableEquals(List.of(students), studentsService.getStudentsMarksMonthYear(2, 2024));
+	}
+
+	@Test
+	void goodMarksQueriesTest() {
+		archiveMarks();
+		assertIterableEquals(List.of(students[4], students[5]), studentsService.getStudentsAllGoodMarks(75));
+		assertTrue(studentsService.getStudentsAllGoodMarks(100).isEmpty());
+		assertIterableEquals(List.of(students[5]), studentsService.getStudentsAllGoodMarksSubject(SUBJECT1, 75));
+		assertTrue(studentsService.getStudentsAllGoodMarksSubject(SUBJECT1, 100).isEmpty());
+		assertIterableEquals(List.of(students[0], students[2], students[5]),
+				studentsService.getStudentsGoodSubjectMark(SUBJECT1, 75));
+		assertTrue(studentsService.getStudentsGoodSubjectMark(SUBJECT2, 80).isEmpty());
+	}
+
+	@Test
+	void marksDateQueriesTest() {
+		archiveMarks();
+		assertIterableEquals(List.of(students[0], students[1], students[2], students[5]),
+				studentsService.getStudentsMarksDate(DATE1));
+		assertIterableEquals(List.of(students[2], students[3], students[5]),
+				studentsService.getStudentsMarksDate(DATE4));
+		assertIterableEquals(List.of(students[0], students[1], students[2], students[5]),
+				studentsService.getStudentsMarksMonthYear(1, 2024));
+		assertIterableEquals(List.of(students[0], students[1], students[2], students[3], students[4], students[5]),
+				studentsService.getStudentsMarksMonthYear(2, 2024));
+	}
+
+	@Test
+	void summaryAggregationsTest() {
+		archiveMarks();
+		List<StudentAvgScore> expected = List.of(new StudentAvgScore(ID6, 100), new StudentAvgScore(ID5, 95));
+		assertIterableEquals(expected, studentsService.getStudentAvgScoreGreater(90));
+		assertIterableEquals(List.of(ID6, ID2), studentsService.getBestStudents(2));
+		assertIterableEquals(List.of(ID7, ID5), studentsService.getWorstStudents(2));
+		assertIterableEquals(List.of(students[6]), studentsService.getStudentsFewMarks(1));
+		assertIterableEquals(List.of(students[0], students[1], students[3]),
+				studentsService.getStudentsMarksAmountBetween(2, 3));
+	}
+
+}
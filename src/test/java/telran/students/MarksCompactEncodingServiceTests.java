@@ -0,0 +1,67 @@
+package telran.students;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static telran.students.TestDb.*;
+
+import java.time.ZoneId;
+import java.util.*;
+
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Filters;
+
+import telran.students.config.MarksEncodingMigration;
+import telran.students.dto.Mark;
+import telran.students.model.StudentDoc;
+
+/**
+ * All the service tests with the compact encoding of the marks
+ * plus the stored format and the migration from the default encoding
+ */
+@SpringBootTest(properties = "students.marks.compact-encoding=true")
+class MarksCompactEncodingServiceTests extends StudentsMarksServiceTests {
+	private static final String ID_DOCUMENT_FIELD = "_id";
+	private static final String MARKS_FIELD = "marks";
+	private static final String DATE_FIELD = "date";
+	private static final String COMPACT_SUBJECT_FIELD = "s";
+	private static final String COMPACT_DATE_FIELD = "d";
+	@Autowired
+	MongoTemplate mongoTemplate;
+	@Autowired
+	MarksEncodingMigration marksEncodingMigration;
+	MongoCollection<Document> collection;
+
+	@BeforeEach
+	void setCollection() {
+		collection = mongoTemplate.getCollection(mongoTemplate.getCollectionName(StudentDoc.class));
+	}
+
+	@Test
+	void compactMarkTest() {
+		Document document = collection.find(Filters.eq(ID_DOCUMENT_FIELD, ID1)).first();
+		Document mark = document.getList(MARKS_FIELD, Document.class).get(0);
+		assertEquals(SUBJECT1, mark.get(COMPACT_SUBJECT_FIELD));
+		assertEquals((int) DATE1.toEpochDay(), mark.get(COMPACT_DATE_FIELD));
+		assertFalse(mark.containsKey(DATE_FIELD));
+	}
+
+	@Test
+	void migrationTest() {
+		Document oldMark = new Document("subject", SUBJECT1).append("score", 90).append(DATE_FIELD,
+				Date.from(DATE_NOT_EXIST.atStartOfDay(ZoneId.systemDefault()).toInstant()));
+		collection.insertOne(new Document(ID_DOCUMENT_FIELD, ID_NOT_EXIST).append("phone", PHONE_NOT_EXIST)
+				.append(MARKS_FIELD, List.of(oldMark)));
+		assertTrue(studentsService.getStudentsMarksDate(DATE_NOT_EXIST).isEmpty());
+		assertEquals(1, marksEncodingMigration.migrate(StudentDoc.class));
+		assertIterableEquals(List.of(studentNotExist), studentsService.getStudentsMarksDate(DATE_NOT_EXIST));
+		assertIterableEquals(List.of(new Mark(SUBJECT1, 90, DATE_NOT_EXIST)), studentsService.getMarks(ID_NOT_EXIST));
+		assertEquals(0, marksEncodingMigration.migrate(StudentDoc.class));
+	}
+
+}
@@ -0,0 +1,48 @@
+package telran.students;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.DocumentCodec;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+
+import lombok.extern.slf4j.Slf4j;
+import telran.students.model.StudentDoc;
+
+@Slf4j
+class MarksCompactEncodingTests {
+	private static final int N_MARKS = 1000;
+	MappingMongoConverter defaultConverter = MarksEncodingFixtures.getConverter(false);
+	MappingMongoConverter compactConverter = MarksEncodingFixtures.getConverter(true);
+
+	@Test
+	void compactRoundTripTest() {
+		StudentDoc studentDoc = MarksEncodingFixtures.getStudentDoc(N_MARKS);
+		Document document = new Document();
+		compactConverter.write(studentDoc, document);
+		StudentDoc actual = compactConverter.read(StudentDoc.class, document);
+		assertEquals(studentDoc.build(), actual.build());
+		assertIterableEquals(studentDoc.getMarks(), actual.getMarks());
+	}
+
+	@Test
+	void compactSizeTest() {
+		StudentDoc studentDoc = MarksEncodingFixtures.getStudentDoc(N_MARKS);
+		RawBsonDocument defaultBson = toBson(defaultConverter, studentDoc);
+		RawBsonDocument compactBson = toBson(compactConverter, studentDoc);
+		int defaultSize = defaultBson.getByteBuffer().remaining();
+		int compactSize = compactBson.getByteBuffer().remaining();
+		log.info("document with {} marks: default size {} bytes, compact size {} bytes", N_MARKS,
+				defaultSize, compactSize);
+		assertTrue(compactSize < defaultSize);
+	}
+
+	private RawBsonDocument toBson(MappingMongoConverter converter, StudentDoc studentDoc) {
+		Document document = new Document();
+		converter.write(studentDoc, document);
+		return new RawBsonDocument(document, new DocumentCodec());
+	}
+
+}
@@ -0,0 +1,45 @@
+package telran.students;
+
+import java.util.concurrent.TimeUnit;
+
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.DocumentCodec;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+
+import telran.students.model.StudentDoc;
+
+/**
+ * Decode throughput of a student document with the default and the compact encodings of the marks.
+ * Run by: mvn -Pencoding-benchmark -DskipTests test
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class MarksEncodingBenchmark {
+	@Param({ "default", "compact" })
+	String encoding;
+	@Param({ "1000" })
+	int nMarks;
+	MappingMongoConverter converter;
+	RawBsonDocument bson;
+	DocumentCodec codec = new DocumentCodec();
+
+	@Setup
+	public void setUp() {
+		converter = MarksEncodingFixtures.getConverter(encoding.equals("compact"));
+		Document document = new Document();
+		converter.write(MarksEncodingFixtures.getStudentDoc(nMarks), document);
+		bson = new RawBsonDocument(document, codec);
+	}
+
+	@Benchmark
+	public StudentDoc decode() {
+		return converter.read(StudentDoc.class, bson.decode(codec));
+	}
+
+}
@@ -0,0 +1,61 @@
+package telran.students;
+
+import static telran.students.TestDb.*;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import org.springframework.data.mapping.model.PropertyNameFieldNamingStrategy;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+
+import telran.students.config.MarksCompactEncodingConfig;
+import telran.students.config.MarksCompactEncodingConfig.CompactFieldNamingStrategy;
+import telran.students.dto.Mark;
+import telran.students.model.StudentDoc;
+
+/**
+ * Converters and documents shared by the marks encoding tests and benchmark
+ */
+class MarksEncodingFixtures {
+	private static final String[] SUBJECTS = { SUBJECT1, SUBJECT2, SUBJECT3, SUBJECT4 };
+	private static final LocalDate FIRST_DATE = LocalDate.of(2020, 1, 1);
+
+	private MarksEncodingFixtures() {
+	}
+
+	/**
+	 * 
+	 * @param compact
+	 * @return converter without a database, configured like the application with a given encoding
+	 */
+	static MappingMongoConverter getConverter(boolean compact) {
+		MongoCustomConversions conversions = compact ? MarksCompactEncodingConfig.compactConversions()
+				: new MongoCustomConversions(List.of());
+		MongoMappingContext mappingContext = new MongoMappingContext();
+		mappingContext.setSimpleTypeHolder(conversions.getSimpleTypeHolder());
+		mappingContext.setFieldNamingStrategy(compact ? CompactFieldNamingStrategy.INSTANCE
+				: PropertyNameFieldNamingStrategy.INSTANCE);
+		mappingContext.afterPropertiesSet();
+		MappingMongoConverter res = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext);
+		res.setCustomConversions(conversions);
+		res.afterPropertiesSet();
+		return res;
+	}
+
+	/**
+	 * 
+	 * @param nMarks
+	 * @return document of the first test student with a given amount of the marks at the consecutive dates
+	 */
+	static StudentDoc getStudentDoc(int nMarks) {
+		StudentDoc res = new StudentDoc(students[0]);
+		res.getMarks().addAll(IntStream.range(0, nMarks).mapToObj(i -> new Mark(SUBJECTS[i % SUBJECTS.length],
+				60 + i % 41, FIRST_DATE.plusDays(i))).toList());
+		return res;
+	}
+
+}
@@ -0,0 +1,97 @@
+package telran.students;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static telran.students.TestDb.*;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.*;
+
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Updates;
+
+import telran.students.config.MarksEncodingMigration;
+import telran.students.dto.Mark;
+import telran.students.model.StudentDoc;
+import telran.students.service.StudentsService;
+
+/**
+ * Switching the compact encoding off: the marks written by the compact encoding
+ * are migrated back to the default one
+ */
+@SpringBootTest
+class MarksEncodingMigrationTests {
+	private static final String MIGRATIONS_COLLECTION = "migrations";
+	private static final String MARKS_ENCODING_MIGRATION_ID = "marks-encoding";
+	private static final String COMPACT_FIELD = "compact";
+	private static final String ID_DOCUMENT_FIELD = "_id";
+	private static final String MARKS_FIELD = "marks";
+	private static final String ARCHIVED_FIELD = "archived";
+	private static final String LAST_DATE_FIELD = "lastDate";
+	@Autowired
+	StudentsService studentsService;
+	@Autowired
+	MongoTemplate mongoTemplate;
+	@Autowired
+	MarksEncodingMigration marksEncodingMigration;
+	@Autowired
+	TestDb testDb;
+	MongoCollection<Document> collection;
+
+	@BeforeEach
+	void setUp() {
+		testDb.createDb();
+		collection = mongoTemplate.getCollection(mongoTemplate.getCollectionName(StudentDoc.class));
+	}
+
+	@Test
+	void compactToDefaultTest() {
+		insertCompactStudent();
+		assertTrue(studentsService.getStudentsMarksDate(DATE_NOT_EXIST).isEmpty());
+		assertEquals(1, marksEncodingMigration.migrate(StudentDoc.class));
+		assertIterableEquals(List.of(studentNotExist), studentsService.getStudentsMarksDate(DATE_NOT_EXIST));
+		assertIterableEquals(List.of(new Mark(SUBJECT1, 90, DATE_NOT_EXIST)), studentsService.getMarks(ID_NOT_EXIST));
+		Document document = collection.find(Filters.eq(ID_DOCUMENT_FIELD, ID_NOT_EXIST)).first();
+		assertEquals(toDate(DATE1), document.get(ARCHIVED_FIELD, Document.class).get(LAST_DATE_FIELD));
+		assertEquals(0, marksEncodingMigration.migrate(StudentDoc.class));
+	}
+
+	@Test
+	void completedMigrationTest() {
+		MongoCollection<Document> migrations = mongoTemplate.getCollection(MIGRATIONS_COLLECTION);
+		Bson migrationFilter = Filters.eq(ID_DOCUMENT_FIELD, MARKS_ENCODING_MIGRATION_ID);
+		migrations.deleteMany(migrationFilter);
+		marksEncodingMigration.run(null);
+		assertFalse(migrations.find(migrationFilter).first().getBoolean(COMPACT_FIELD));
+		insertCompactStudent();
+		marksEncodingMigration.run(null);
+		assertTrue(collection.find(Filters.eq(ID_DOCUMENT_FIELD, ID_NOT_EXIST)).first()
+				.getList(MARKS_FIELD, Document.class).get(0).containsKey("s"));
+		migrations.updateOne(migrationFilter, Updates.set(COMPACT_FIELD, true));
+		marksEncodingMigration.run(null);
+		assertIterableEquals(List.of(new Mark(SUBJECT1, 90, DATE_NOT_EXIST)), studentsService.getMarks(ID_NOT_EXIST));
+		assertFalse(migrations.find(migrationFilter).first().getBoolean(COMPACT_FIELD));
+	}
+
+	private void insertCompactStudent() {
+		Document compactMark = new Document("s", SUBJECT1).append("v", 90)
+				.append("d", (int) DATE_NOT_EXIST.toEpochDay());
+		collection.insertOne(new Document(ID_DOCUMENT_FIELD, ID_NOT_EXIST).append("phone", PHONE_NOT_EXIST)
+				.append(MARKS_FIELD, List.of(compactMark))
+				.append(ARCHIVED_FIELD, new Document(LAST_DATE_FIELD, (int) DATE1.toEpochDay())));
+	}
+
+	private Date toDate(LocalDate date) {
+		return Date.from(date.atStartOfDay(ZoneId.systemDefault()).toInstant());
+	}
+
+}
@@ -0,0 +1,65 @@
+package telran.students;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.LazyInitializationBeanFactoryPostProcessor;
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.autoconfigure.context.ConfigurationPropertiesAutoConfiguration;
+import org.springframework.boot.autoconfigure.validation.ValidationAutoConfiguration;
+import org.springframework.boot.context.properties.bind.validation.BindValidationException;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+
+import com.mongodb.ReadPreference;
+
+import telran.students.config.ReadPreferenceProperties;
+
+class ReadPreferencePropertiesTests {
+	private static final String PREFIX = "students.read-preference.";
+	ApplicationContextRunner contextRunner = new ApplicationContextRunner()
+			.withConfiguration(AutoConfigurations.of(ConfigurationPropertiesAutoConfiguration.class,
+					ValidationAutoConfiguration.class))
+			.withUserConfiguration(ReadPreferenceProperties.class);
+
+	@Test
+	void bindingTest() {
+		contextRunner.withPropertyValues(PREFIX + "analytic=secondaryPreferred",
+				PREFIX + "methods.get-worst-students=nearest", PREFIX + "max-staleness-seconds=120")
+				.run(context -> {
+					ReadPreferenceProperties properties = context.getBean(ReadPreferenceProperties.class);
+					assertThat(properties.getAnalyticReadPreference("get-best-students"))
+							.isEqualTo(ReadPreference.secondaryPreferred(120, TimeUnit.SECONDS));
+					assertThat(properties.getAnalyticReadPreference("get-worst-students"))
+							.isEqualTo(ReadPreference.nearest(120, TimeUnit.SECONDS));
+				});
+		contextRunner.run(context -> assertThat(context.getBean(ReadPreferenceProperties.class)
+				.getAnalyticReadPreference("get-best-students")).isEqualTo(ReadPreference.primary()));
+	}
+
+	@Test
+	void maxStalenessTooLowTest() {
+		contextRunner.withPropertyValues(PREFIX + "analytic=secondary", PREFIX + "max-staleness-seconds=30")
+				.run(context -> assertThat(context).getFailure()
+						.hasRootCauseInstanceOf(BindValidationException.class));
+	}
+
+	@Test
+	void lazyInitializationTest() {
+		contextRunner.withInitializer(context -> context
+				.addBeanFactoryPostProcessor(new LazyInitializationBeanFactoryPostProcessor()))
+				.withPropertyValues(PREFIX + "analytic=secondary", PREFIX + "max-staleness-seconds=30")
+				.run(context -> assertThat(context).getFailure()
+						.hasRootCauseInstanceOf(BindValidationException.class));
+	}
+
+	@Test
+	void unknownModeTest() {
+		contextRunner.withPropertyValues(PREFIX + "analytic=secondaryPrefered")
+				.run(context -> assertThat(context).getFailure().hasRootCauseInstanceOf(IllegalArgumentException.class));
+		contextRunner.withPropertyValues(PREFIX + "methods.get-best-students=fastest")
+				.run(context -> assertThat(context).getFailure().hasRootCauseInstanceOf(IllegalArgumentException.class));
+	}
+
+}
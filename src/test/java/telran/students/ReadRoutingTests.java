@@ -0,0 +1,122 @@
+package telran.students;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static telran.students.TestDb.*;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+
+import com.mongodb.event.*;
+
+import telran.students.dto.Student;
+import telran.students.service.StudentsService;
+
+/**
+ * Checks the read preference the driver actually sends with the find and aggregate commands.
+ * The replica set name makes the driver see a replica set rather than a single server,
+ * otherwise it would not send non primary read preferences at all
+ */
+@SpringBootTest(properties = { "de.flapdoodle.mongodb.embedded.storage.repl-set-name=rs0",
+		"de.flapdoodle.mongodb.embedded.storage.oplog-size=10",
+		"spring.data.mongodb.replica-set-name=rs0",
+		"students.read-preference.analytic=secondaryPreferred",
+		"students.read-preference.methods.get-worst-students=nearest",
+		"students.read-preference.max-staleness-seconds=120" })
+class ReadRoutingTests {
+	private static final String FIND_COMMAND = "find";
+	private static final String AGGREGATE_COMMAND = "aggregate";
+	private static final String READ_PREFERENCE_FIELD = "$readPreference";
+	private static final String MODE_FIELD = "mode";
+	private static final String MAX_STALENESS_FIELD = "maxStalenessSeconds";
+	private static final String PRIMARY_MODE = "primary";
+	private static final long MAX_STALENESS_SECONDS = 120;
+	static List<BsonDocument> commands = new CopyOnWriteArrayList<>();
+	@Autowired
+	StudentsService studentsService;
+	@Autowired
+	TestDb testDb;
+
+	@TestConfiguration
+	static class CommandCaptureConfig {
+		@Bean
+		MongoClientSettingsBuilderCustomizer commandCaptureCustomizer() {
+			return builder -> builder.addCommandListener(new CommandListener() {
+				@Override
+				public void commandStarted(CommandStartedEvent event) {
+					commands.add(event.getCommand().clone());
+				}
+			});
+		}
+	}
+
+	@BeforeEach
+	void setUp() {
+		testDb.createDb();
+	}
+
+	@Test
+	void analyticAggregationsTest() {
+		assertReadPreference("secondaryPreferred", AGGREGATE_COMMAND,
+				() -> studentsService.getStudentAvgScoreGreater(90));
+		assertReadPreference("secondaryPreferred", AGGREGATE_COMMAND, () -> studentsService.getBestStudents(2));
+		assertReadPreference("nearest", AGGREGATE_COMMAND, () -> studentsService.getWorstStudents(2));
+	}
+
+	@Test
+	void analyticFindTest() {
+		assertReadPreference("secondaryPreferred", FIND_COMMAND,
+				() -> studentsService.getStudentsMarksMonthYear(1, 2024));
+	}
+
+	@Test
+	void readYourWritesTest() {
+		studentsService.addMark(ID7, markNotExist);
+		assertEquals(new Student(ID7, PHONE_NOT_EXIST), studentsService.updatePhoneNumber(ID7, PHONE_NOT_EXIST));
+		List<BsonDocument> readPreferences = getSentReadPreferences(FIND_COMMAND, () -> {
+			assertIterableEquals(List.of(markNotExist), studentsService.getMarks(ID7));
+			assertEquals(new Student(ID7, PHONE_NOT_EXIST), studentsService.getStudent(ID7));
+		});
+		assertFalse(readPreferences.isEmpty());
+		readPreferences.forEach(readPreference -> assertEquals(PRIMARY_MODE,
+				readPreference.getString(MODE_FIELD).getValue()));
+		List<BsonDocument> aggregateReadPreferences = getSentReadPreferences(AGGREGATE_COMMAND, () -> {
+			assertIterableEquals(List.of(markNotExist),
+					studentsService.getStudentMarksSubject(ID7, markNotExist.subject()));
+			assertIterableEquals(List.of(markNotExist),
+					studentsService.getStudentMarksAtDates(ID7, markNotExist.date(), markNotExist.date()));
+		});
+		assertFalse(aggregateReadPreferences.isEmpty());
+		aggregateReadPreferences.forEach(readPreference -> assertEquals(PRIMARY_MODE,
+				readPreference.getString(MODE_FIELD).getValue()));
+	}
+
+	private void assertReadPreference(String mode, String commandName, Runnable query) {
+		List<BsonDocument> readPreferences = getSentReadPreferences(commandName, query);
+		assertFalse(readPreferences.isEmpty());
+		readPreferences.forEach(readPreference -> {
+			assertEquals(mode, readPreference.getString(MODE_FIELD).getValue());
+			assertEquals(MAX_STALENESS_SECONDS, readPreference.getNumber(MAX_STALENESS_FIELD).longValue());
+		});
+	}
+
+	private List<BsonDocument> getSentReadPreferences(String commandName, Runnable query) {
+		commands.clear();
+		query.run();
+		//no $readPreference is sent for the primary
+		return commands.stream().filter(command -> command.getFirstKey().equals(commandName))
+				.map(command -> command.getDocument(READ_PREFERENCE_FIELD,
+						new BsonDocument(MODE_FIELD, new BsonString(PRIMARY_MODE))))
+				.toList();
+	}
+
+}
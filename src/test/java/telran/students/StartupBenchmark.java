@@ -0,0 +1,106 @@
+package telran.students;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+
+import org.bson.Document;
+
+import com.mongodb.client.*;
+
+import de.flapdoodle.embed.mongo.commands.ServerAddress;
+import de.flapdoodle.embed.mongo.distribution.Version;
+import de.flapdoodle.embed.mongo.transitions.*;
+import de.flapdoodle.reverse.TransitionWalker;
+
+/**
+ * Time to the first getStudent of the packaged application launched as a separate JVM,
+ * the default run against the AOT and CDS run of the fast-startup profile.
+ * Fails if the median of the fast-startup runs is not below maxRatio of the default median.
+ * Run by: mvn -Pfast-startup -DskipTests package
+ * arguments: application jar, dependencies directory, CDS archive, number of runs, maxRatio
+ */
+public class StartupBenchmark {
+	private static final String STUDENTS_COLLECTION = "students";
+	private static final String DATABASE = "students-startup";
+	private static final String PROBE_DIRECTORY = "target/startup-probe";
+
+	public static void main(String[] args) throws Exception {
+		String jar = args[0];
+		String libDirectory = args[1];
+		String cdsArchive = args[2];
+		int nRuns = Integer.parseInt(args[3]);
+		double maxRatio = Double.parseDouble(args[4]);
+		String classpath = String.join(File.pathSeparator, jar, libDirectory + "/*", copyProbe());
+		try (TransitionWalker.ReachedState<RunningMongodProcess> mongod = Mongod.instance().start(Version.V5_0_5)) {
+			ServerAddress address = mongod.current().getServerAddress();
+			String uri = String.format("mongodb://%s:%d/%s", address.getHost(), address.getPort(), DATABASE);
+			seedStudent(uri);
+			List<String> defaultJvm = List.of();
+			List<String> fastStartupJvm = List.of("-XX:SharedArchiveFile=" + cdsArchive, "-Xshare:on",
+					"-Dspring.aot.enabled=true", "-Dspring.profiles.active=fast-startup");
+			long defaultTime = medianUptime(defaultJvm, classpath, uri, nRuns);
+			long fastStartupTime = medianUptime(fastStartupJvm, classpath, uri, nRuns);
+			System.out.printf("time to first getStudent (median of %d runs): default %d ms, fast-startup %d ms%n",
+					nRuns, defaultTime, fastStartupTime);
+			if (fastStartupTime > defaultTime * maxRatio) {
+				System.err.printf("fast-startup time %d ms exceeds %.2f of the default time %d ms%n",
+						fastStartupTime, maxRatio, defaultTime);
+				System.exit(1);
+			}
+		}
+	}
+
+	private static String copyProbe() throws IOException {
+		//only the probe itself, the test components must not be scanned by the application
+		String probeClass = StartupProbe.class.getSimpleName() + ".class";
+		Path target = Path.of(PROBE_DIRECTORY, StartupProbe.class.getPackageName().split("\\."))
+				.resolve(probeClass);
+		Files.createDirectories(target.getParent());
+		try (InputStream in = StartupProbe.class.getResourceAsStream(probeClass)) {
+			Files.copy(in, target, StandardCopyOption.REPLACE_EXISTING);
+		}
+		return PROBE_DIRECTORY;
+	}
+
+	private static void seedStudent(String uri) {
+		try (MongoClient client = MongoClients.create(uri)) {
+			MongoCollection<Document> students = client.getDatabase(DATABASE).getCollection(STUDENTS_COLLECTION);
+			students.drop();
+			students.insertOne(new Document("_id", StartupProbe.STUDENT_ID).append("phone", "050-1111111")
+					.append("marks", List.of()));
+		}
+	}
+
+	private static long medianUptime(List<String> jvmArguments, String classpath, String uri, int nRuns)
+			throws IOException, InterruptedException {
+		//the first run warms up the OS file cache
+		runProbe(jvmArguments, classpath, uri);
+		long[] uptimes = new long[nRuns];
+		for (int i = 0; i < nRuns; i++) {
+			uptimes[i] = runProbe(jvmArguments, classpath, uri);
+		}
+		Arrays.sort(uptimes);
+		return uptimes[nRuns / 2];
+	}
+
+	private static long runProbe(List<String> jvmArguments, String classpath, String uri)
+			throws IOException, InterruptedException {
+		List<String> command = new ArrayList<>();
+		command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+		command.addAll(jvmArguments);
+		command.addAll(List.of("-cp", classpath, StartupProbe.class.getName(), "--spring.data.mongodb.uri=" + uri,
+				"--server.port=0"));
+		Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+		List<String> output;
+		try (BufferedReader reader = process.inputReader()) {
+			output = reader.lines().toList();
+		}
+		int exitCode = process.waitFor();
+		return output.stream().filter(line -> line.startsWith(StartupProbe.UPTIME_PREFIX))
+				.mapToLong(line -> Long.parseLong(line.substring(StartupProbe.UPTIME_PREFIX.length())))
+				.findFirst().orElseThrow(() -> new IllegalStateException(String.format("probe %s exited with %d:%n%s",
+						jvmArguments, exitCode, String.join(System.lineSeparator(), output))));
+	}
+
+}
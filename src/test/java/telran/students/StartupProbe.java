@@ -0,0 +1,34 @@
+package telran.students;
+
+import java.lang.management.ManagementFactory;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import telran.students.service.StudentsService;
+
+/**
+ * Child process of {@link StartupBenchmark}: starts the application, serves the first getStudent
+ * and prints the JVM uptime at that moment
+ */
+public class StartupProbe {
+	static final long STUDENT_ID = 1;
+	static final String UPTIME_PREFIX = "startup-probe-uptime-ms=";
+
+	public static void main(String[] args) {
+		SpringApplication application = new SpringApplication(StudentsMarksApplication.class);
+		//the AOT initializer is looked up by the main application class
+		application.setMainApplicationClass(StudentsMarksApplication.class);
+		ConfigurableApplicationContext context = application.run(args);
+		int exitCode = 1;
+		try {
+			context.getBean(StudentsService.class).getStudent(STUDENT_ID);
+			System.out.println(UPTIME_PREFIX + ManagementFactory.getRuntimeMXBean().getUptime());
+			exitCode = SpringApplication.exit(context);
+		} catch (RuntimeException e) {
+			e.printStackTrace();
+		}
+		System.exit(exitCode);
+	}
+
+}
@@ -0,0 +1,176 @@
+package telran.students;
+
+import java.io.*;
+import java.nio.file.*;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.*;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import telran.students.dto.*;
+import telran.students.model.StudentDoc;
+import telran.students.repo.StudentRepo;
+import telran.students.service.StudentsService;
+
+/**
+ * Drives StudentsService from several threads with the operations mix
+ * configured by LoadProperties over the seeded synthetic data.
+ * The latencies are recorded in nanoseconds per operation
+ * after an untimed warm-up pass of the same mix
+ */
+@RequiredArgsConstructor
+@Slf4j
+public class StudentsLoadGenerator {
+	private static final String[] SUBJECTS = { "Java", "Spring", "Mongo", "SQL", "Algorithms", "Networks",
+			"Linux", "Docker", "React", "Python" };
+	private static final LocalDate FIRST_DATE = LocalDate.of(2022, 1, 1);
+	private static final int N_DATES = 730;
+	private static final int MIN_SCORE = 40;
+	private static final int MAX_SCORE = 100;
+	private static final int SIGNIFICANT_DIGITS = 3;
+	private static final double NANOS_PER_MILLI = 1_000_000.0;
+	private static final int PHONE_NUMBERS = 10_000_000;
+	final StudentsService studentsService;
+	final StudentRepo studentRepo;
+	final LoadProperties properties;
+	/** phones having been updated, the other students have their seeded phones */
+	final Map<Long, String> updatedPhones = new ConcurrentHashMap<>();
+
+	public void createDb() {
+		studentRepo.deleteAll();
+		updatedPhones.clear();
+		Random random = new Random(properties.getSeed());
+		List<StudentDoc> studentDocs = LongStream.rangeClosed(1, properties.getStudents())
+				.mapToObj(id -> getStudentDoc(id, random)).toList();
+		studentRepo.saveAll(studentDocs);
+		log.debug("{} students with {} marks each have been created", studentDocs.size(),
+				properties.getMarksPerStudent());
+	}
+
+	public Map<LoadOperation, Histogram> run() throws InterruptedException, ExecutionException {
+		LoadOperation[] operations = getWeightedOperations();
+		AtomicLong lastId = new AtomicLong(properties.getStudents());
+		runPass(properties.getWarmupOperationsPerThread(), properties.getThreads(), operations, lastId);
+		log.debug("warm-up of {} operations per thread has been done", properties.getWarmupOperationsPerThread());
+		return runPass(properties.getOperationsPerThread(), 0, operations, lastId);
+	}
+
+	public void writeReports(Map<LoadOperation, Histogram> histograms) throws IOException {
+		Path directory = Files.createDirectories(Path.of(properties.getReportsDirectory()));
+		for (var entry : histograms.entrySet()) {
+			Histogram histogram = entry.getValue();
+			try (PrintStream printStream = new PrintStream(directory.resolve(entry.getKey() + ".hgrm").toFile())) {
+				histogram.outputPercentileDistribution(printStream, NANOS_PER_MILLI);
+			}
+			log.info("{}: count {}, p50 {} ms, p99 {} ms, max {} ms", entry.getKey(), histogram.getTotalCount(),
+					toMillis(histogram.getValueAtPercentile(50)), toMillis(histogram.getValueAtPercentile(99)),
+					toMillis(histogram.getMaxValue()));
+		}
+	}
+
+	public static double toMillis(long nanos) {
+		return nanos / NANOS_PER_MILLI;
+	}
+
+	/**
+	 * 
+	 * @param nOperations operations per thread
+	 * @param seedOffset offset of the random seeds of the threads, so the passes differ
+	 * @return latencies of the pass
+	 */
+	private Map<LoadOperation, Histogram> runPass(int nOperations, int seedOffset, LoadOperation[] operations,
+			AtomicLong lastId) throws InterruptedException, ExecutionException {
+		Map<LoadOperation, Histogram> histograms = new EnumMap<>(LoadOperation.class);
+		Arrays.stream(LoadOperation.values()).forEach(op -> histograms.put(op,
+				new ConcurrentHistogram(SIGNIFICANT_DIGITS)));
+		ExecutorService executor = Executors.newFixedThreadPool(properties.getThreads());
+		List<Future<?>> futures = IntStream.range(0, properties.getThreads())
+				.<Future<?>>mapToObj(i -> executor.submit(() -> runThread(seedOffset + i, nOperations, operations,
+						lastId, histograms)))
+				.toList();
+		executor.shutdown();
+		for (Future<?> future : futures) {
+			future.get();
+		}
+		return histograms;
+	}
+
+	private void runThread(int index, int nOperations, LoadOperation[] operations, AtomicLong lastId,
+			Map<LoadOperation, Histogram> histograms) {
+		Random random = new Random(properties.getSeed() + index + 1);
+		for (int i = 0; i < nOperations; i++) {
+			LoadOperation operation = operations[random.nextInt(operations.length)];
+			long start = System.nanoTime();
+			performOperation(operation, random, lastId);
+			histograms.get(operation).recordValue(System.nanoTime() - start);
+		}
+	}
+
+	private void performOperation(LoadOperation operation, Random random, AtomicLong lastId) {
+		long id = random.nextLong(properties.getStudents()) + 1;
+		switch (operation) {
+		case ADD_MARK -> studentsService.addMark(id, getRandomMark(random));
+		case ADD_STUDENT -> {
+			long newId = lastId.incrementAndGet();
+			studentsService.addStudent(new Student(newId, getPhone(newId)));
+		}
+		case UPDATE_PHONE_NUMBER -> {
+			String phone = getRandomPhone(random);
+			studentsService.updatePhoneNumber(id, phone);
+			updatedPhones.put(id, phone);
+		}
+		case GET_STUDENT_BY_PHONE -> studentsService.getStudentByPhoneNumber(getCurrentPhone(id));
+		case GET_MARKS -> studentsService.getMarks(id);
+		case BEST_STUDENTS -> studentsService.getBestStudents(properties.getLeaderboardSize());
+		case WORST_STUDENTS -> studentsService.getWorstStudents(properties.getLeaderboardSize());
+		}
+	}
+
+	private LoadOperation[] getWeightedOperations() {
+		Map<LoadOperation, Integer> mix = properties.getMix();
+		mix.forEach((op, weight) -> {
+			if (weight < 0) {
+				throw new IllegalStateException(String.format("negative weight %d of %s in operations mix", weight, op));
+			}
+		});
+		LoadOperation[] res = mix.isEmpty() ? LoadOperation.values()
+				: mix.entrySet().stream()
+						.flatMap(e -> Stream.generate(e::getKey).limit(e.getValue()))
+						.toArray(LoadOperation[]::new);
+		if (res.length == 0) {
+			throw new IllegalStateException("operations mix has no positive weights");
+		}
+		return res;
+	}
+
+	private StudentDoc getStudentDoc(long id, Random random) {
+		StudentDoc res = new StudentDoc(new Student(id, getPhone(id)));
+		IntStream.range(0, properties.getMarksPerStudent()).forEach(i -> res.getMarks().add(getRandomMark(random)));
+		return res;
+	}
+
+	private Mark getRandomMark(Random random) {
+		return new Mark(SUBJECTS[random.nextInt(SUBJECTS.length)], random.nextInt(MIN_SCORE, MAX_SCORE + 1),
+				FIRST_DATE.plusDays(random.nextInt(N_DATES)));
+	}
+
+	private String getCurrentPhone(long id) {
+		String res = updatedPhones.get(id);
+		return res == null ? getPhone(id) : res;
+	}
+
+	private String getRandomPhone(Random random) {
+		return String.format("05%d-%07d", random.nextInt(10), random.nextInt(PHONE_NUMBERS));
+	}
+
+	private String getPhone(long id) {
+		return String.format("05%d-%07d", id % 10, id);
+	}
+
+}
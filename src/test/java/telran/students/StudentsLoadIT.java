@@ -0,0 +1,42 @@
+package telran.students;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import java.util.Map;
+
+import org.HdrHistogram.Histogram;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+
+/**
+ * Run by: mvn -Pload-test verify
+ */
+@SpringBootTest(properties = "logging.level.telran=info")
+@Import(StudentsLoadGenerator.class)
+@EnableConfigurationProperties(LoadProperties.class)
+class StudentsLoadIT {
+	@Autowired
+	StudentsLoadGenerator loadGenerator;
+	@Autowired
+	LoadProperties properties;
+
+	@Test
+	void mixedWorkloadSloTest() throws Exception {
+		loadGenerator.createDb();
+		Map<LoadOperation, Histogram> histograms = loadGenerator.run();
+		loadGenerator.writeReports(histograms);
+		List<String> violations = properties.getSloP99().entrySet().stream()
+				.filter(e -> histograms.get(e.getKey()).getTotalCount() > 0)
+				.filter(e -> StudentsLoadGenerator.toMillis(histograms.get(e.getKey())
+						.getValueAtPercentile(99)) > e.getValue())
+				.map(e -> String.format("%s p99 %.2f ms > %d ms", e.getKey(), StudentsLoadGenerator
+						.toMillis(histograms.get(e.getKey()).getValueAtPercentile(99)), e.getValue()))
+				.toList();
+		assertTrue(violations.isEmpty(), () -> "SLO thresholds exceeded: " + violations);
+	}
+
+}
@@ -87,6 +87,13 @@ class StudentsMarksServiceTests {
 		assertTrue(studentsService.getStudentsMarksMonthYear(2, 2020).isEmpty());
 	}
 	@Test
+	void getStudentsMarksMonthYearBoundsTest() {
+		studentsService.addMark(ID7, new Mark(SUBJECT1, 90, LocalDate.of(2024, 3, 31)));
+		studentsService.addMark(ID6, new Mark(SUBJECT2, 90, LocalDate.of(2024, 4, 1)));
+		assertIterableEquals(List.of(students[6]), studentsService.getStudentsMarksMonthYear(3, 2024));
+		assertIterableEquals(List.of(students[5]), studentsService.getStudentsMarksMonthYear(4, 2024));
+	}
+	@Test
 	void getStudentsGoodSubjectMarkTest() {
 		List<Student> expected = List.of(students[5]);
 		assertIterableEquals(expected, studentsService.getStudentsGoodSubjectMark(SUBJECT1, 85));